@@ -0,0 +1,189 @@
+package com.leovegas.mockapi;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+/**
+ * Structured (JSON lines) access log that never blocks request threads.
+ *
+ * Request threads format each record into a {@link StringBuilder} taken from a
+ * fixed pool and hand it to a background writer through a bounded queue. The
+ * writer drains the queue in batches, flushes once per batch and returns the
+ * buffers to the pool. When no buffer is free the record is dropped and
+ * counted; the writer reports drops as a separate log line.
+ *
+ * Attach it to Jetty with {@code server.setRequestLog(accessLog::log)}.
+ */
+public class AccessLog {
+    public static final String REQUEST_ID_ATTRIBUTE = "mockapi.requestId";
+    private static final int MAX_BATCH = 256;
+    private static final int INITIAL_BUFFER_CHARS = 256;
+    // Buffers grown past this by an unusually long record are replaced, not kept in the pool
+    private static final int MAX_RETAINED_BUFFER_CHARS = 1024;
+
+    private final Writer out;
+    private final boolean closeOnStop;
+    private final double sampleRate;
+    private final ArrayBlockingQueue<StringBuilder> pending;
+    private final ArrayBlockingQueue<StringBuilder> free;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * @param sampleRate fraction (0..1) of successful requests to log; responses
+     *                   with status 400 or above are always logged
+     */
+    public AccessLog(Writer out, boolean closeOnStop, int queueSize, double sampleRate) {
+        if (queueSize < 1) throw new IllegalArgumentException("queue size must be >= 1");
+        this.out = out;
+        this.closeOnStop = closeOnStop;
+        this.sampleRate = Math.max(0, Math.min(1, sampleRate));
+        this.pending = new ArrayBlockingQueue<>(queueSize);
+        this.free = new ArrayBlockingQueue<>(queueSize);
+        for (int i = 0; i < queueSize; i++) {
+            free.add(new StringBuilder(INITIAL_BUFFER_CHARS));
+        }
+        this.writer = new Thread(this::drainLoop, "access-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** Jetty {@code RequestLog} callback, run on the request thread once the response is complete. */
+    public void log(Request request, Response response) {
+        Object id = request.getAttribute(REQUEST_ID_ATTRIBUTE);
+        long now = System.currentTimeMillis();
+        long received = request.getTimeStamp();
+        record(now, id == null ? "" : id.toString(), request.getMethod(), request.getRequestURI(),
+                response.getStatus(), response.getHttpChannel().getBytesWritten(),
+                received > 0 ? now - received : 0);
+    }
+
+    /** Formats and enqueues one record without blocking; returns false if it was sampled out or dropped. */
+    public boolean record(long timestampMillis, String requestId, String method, String path,
+                          int status, long bytes, long latencyMillis) {
+        if (status < 400 && sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return false;
+        }
+        StringBuilder sb = free.poll();
+        if (sb == null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        sb.append("{\"ts\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(timestampMillis), sb);
+        sb.append("\",\"id\":");
+        appendJsonString(sb, requestId);
+        sb.append(",\"method\":");
+        appendJsonString(sb, method);
+        sb.append(",\"path\":");
+        appendJsonString(sb, path);
+        sb.append(",\"status\":").append(status)
+          .append(",\"bytes\":").append(bytes)
+          .append(",\"latencyMs\":").append(latencyMillis)
+          .append('}');
+        if (!pending.offer(sb)) {
+            // Cannot happen while every buffer comes from the pool, but never lose one
+            recycle(sb);
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /** Stops the writer after it has written everything already queued. */
+    public void stop() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        List<StringBuilder> batch = new ArrayList<>(MAX_BATCH);
+        long reportedDrops = 0;
+        while (running || !pending.isEmpty()) {
+            try {
+                StringBuilder first = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pending.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException e) {
+                // stop() interrupts to wake us; loop condition decides whether to exit
+                pending.drainTo(batch, MAX_BATCH);
+            }
+            long drops = dropped.get();
+            if (batch.isEmpty() && drops == reportedDrops) continue;
+            try {
+                for (StringBuilder sb : batch) {
+                    out.append(sb).append('\n');
+                }
+                if (drops != reportedDrops) {
+                    out.append("{\"type\":\"dropped\",\"count\":").append(Long.toString(drops - reportedDrops)).append("}\n");
+                    reportedDrops = drops;
+                }
+                out.flush();
+            } catch (IOException e) {
+                System.err.println("Access log write failed: " + e);
+            } finally {
+                for (StringBuilder sb : batch) {
+                    recycle(sb);
+                }
+                batch.clear();
+            }
+        }
+        try {
+            if (closeOnStop) out.close(); else out.flush();
+        } catch (IOException e) {
+            System.err.println("Access log close failed: " + e);
+        }
+    }
+
+    private void recycle(StringBuilder sb) {
+        if (sb.capacity() > MAX_RETAINED_BUFFER_CHARS) {
+            sb = new StringBuilder(INITIAL_BUFFER_CHARS);
+        } else {
+            sb.setLength(0);
+        }
+        free.offer(sb);
+    }
+
+    private static void appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
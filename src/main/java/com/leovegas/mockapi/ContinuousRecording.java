@@ -0,0 +1,48 @@
+package com.leovegas.mockapi;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Continuous JFR recording kept as a bounded ring buffer (by size and age) so a
+ * long-running mock can be profiled after the fact by dumping it on demand.
+ */
+public final class ContinuousRecording {
+    private final Recording recording;
+
+    private ContinuousRecording(Recording recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Starts a recording using the JDK "default" settings plus the mock API request
+     * events, minus the events that capture the process environment and system
+     * properties; dumps may leave the host, and those routinely hold secrets.
+     */
+    public static ContinuousRecording start(long maxSizeBytes, Duration maxAge) throws IOException, ParseException {
+        Recording recording = new Recording(Configuration.getConfiguration("default"));
+        recording.disable("jdk.InitialEnvironmentVariable");
+        recording.disable("jdk.InitialSystemProperty");
+        recording.setName("mock-api-continuous");
+        recording.setToDisk(true);
+        recording.setMaxSize(maxSizeBytes);
+        recording.setMaxAge(maxAge);
+        recording.enable(RequestEvent.class);
+        recording.enable(RequestPhaseEvent.class);
+        recording.start();
+        return new ContinuousRecording(recording);
+    }
+
+    /** Writes everything currently held in the ring buffer to {@code target}. */
+    public void dump(Path target) throws IOException {
+        recording.dump(target);
+    }
+
+    public void stop() {
+        recording.close();
+    }
+}
@@ -2,12 +2,68 @@ package com.leovegas.mockapi;
 
 import static spark.Spark.*;
 import com.google.gson.Gson;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import spark.Request;
+import spark.Response;
+import spark.RouteImpl;
+import spark.routematch.RouteMatch;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+import spark.embeddedserver.jetty.JettyServerFactory;
 
 public class MockApiServer {
+    // Gson is thread-safe, so one instance serves every route
+    private static final Gson GSON = new Gson();
+    private static final String REQUEST_EVENT_ATTRIBUTE = "mockapi.jfr.request";
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final String IN_FLIGHT_ATTRIBUTE = "mockapi.inFlight";
+    private static volatile boolean ready;
+    private static volatile boolean draining;
+    private static volatile long timeToReadyMillis = -1;
+    private static final String RATE_LIMIT_ROUTE_PREFIX = "mock.ratelimit.route.";
+    // Validated mock.ratelimit spec; each routed path gets its own limiter built from it on first use
+    private static volatile String defaultRateLimitSpec;
+    private static volatile long rateLimitIdleNanos;
+    private static final ConcurrentHashMap<String, RateLimiter> defaultRouteLimiters = new ConcurrentHashMap<>();
+    private static volatile Map<String, RateLimiter> routeLimiters = Map.of();
+    private static volatile Set<String> routedPaths = Set.of();
+    private static volatile String rateLimitKeyHeader = "X-API-Key";
+    private static ScheduledExecutorService rateLimitEvictor;
+    private static volatile ContinuousRecording recording;
+    private static volatile AccessLog accessLog;
+    // Request ids are <per-process prefix>-<sequence>, cheap to generate and unique per run
+    private static final String REQUEST_ID_PREFIX = UUID.randomUUID().toString().substring(0, 8);
+    private static final AtomicLong requestSequence = new AtomicLong();
+
     public static void main(String[] args) {
-        ipAddress("0.0.0.0");
         int portNumber = 4567;
         if (args != null && args.length > 0) {
             try {
@@ -25,25 +81,134 @@ public class MockApiServer {
                 }
             }
         }
+        start(portNumber);
+    }
+
+    /**
+     * Starts the server and blocks until it is accepting connections.
+     * Pass 0 to bind an ephemeral port; the port actually bound is returned.
+     */
+    public static int start(int portNumber) {
+        long startNanos = System.nanoTime();
+        inFlight.set(0);
+        draining = false;
+        ready = false;
+        // Must be registered before the first route ignites the embedded server
+        configureAccessLog();
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, new EmbeddedJettyFactory(new InstrumentedJettyFactory()));
+        ipAddress("0.0.0.0");
         port(portNumber); // Default Spark port (can be overridden)
 
+        before((req, res) -> {
+            String requestId = req.headers("X-Request-Id");
+            if (requestId == null || requestId.isEmpty()) {
+                requestId = REQUEST_ID_PREFIX + "-" + Long.toHexString(requestSequence.incrementAndGet());
+            }
+            req.attribute(AccessLog.REQUEST_ID_ATTRIBUTE, requestId);
+            res.header("X-Request-Id", requestId);
+        });
+
+        before((req, res) -> {
+            if (draining && !"/health/live".equals(req.pathInfo())) {
+                res.type("application/json");
+                halt(503, "{\"status\":\"DRAINING\"}");
+            }
+        });
+
+        before((req, res) -> {
+            RequestEvent event = new RequestEvent();
+            if (!event.isEnabled()) return;
+            event.begin();
+            event.method = req.requestMethod();
+            event.route = req.pathInfo();
+            event.requestBytes = Math.max(0, req.contentLength());
+            org.eclipse.jetty.server.Request base = org.eclipse.jetty.server.Request.getBaseRequest(req.raw());
+            if (base != null && base.getTimeStamp() > 0) {
+                event.queueWait = Math.max(0, System.currentTimeMillis() - base.getTimeStamp());
+            }
+            req.attribute(REQUEST_EVENT_ATTRIBUTE, event);
+        });
+        afterAfter((req, res) -> {
+            RequestEvent event = req.attribute(REQUEST_EVENT_ATTRIBUTE);
+            if (event == null) return;
+            event.end();
+            if (event.shouldCommit()) {
+                event.status = res.raw().getStatus();
+                event.commit();
+            }
+        });
+
+        configureRateLimits();
+        before((req, res) -> {
+            String path = req.pathInfo();
+            // Unmatched paths will 404 anyway; probing them must not spend a client's quota
+            if (!routedPaths.contains(path)) return;
+            RateLimiter limiter = routeLimiters.get(path);
+            if (limiter == null) {
+                String spec = defaultRateLimitSpec;
+                if (spec == null || path.startsWith("/health/")) return;
+                limiter = defaultRouteLimiters.computeIfAbsent(path, p -> RateLimiter.fromSpec(spec, rateLimitIdleNanos));
+            }
+            String apiKey = req.headers(rateLimitKeyHeader);
+            String clientKey = apiKey != null && !apiKey.isEmpty() ? apiKey : req.ip();
+            long now = System.nanoTime();
+            long decision = limiter.tryAcquire(clientKey, now);
+            res.header("X-RateLimit-Limit", Integer.toString(limiter.capacity()));
+            if (decision >= 0) {
+                res.header("X-RateLimit-Remaining", Long.toString(decision));
+                res.header("X-RateLimit-Reset", Long.toString(ceilSeconds(limiter.nanosUntilFull(decision))));
+            } else {
+                long retryAfter = ceilSeconds(-decision);
+                res.header("X-RateLimit-Remaining", "0");
+                res.header("X-RateLimit-Reset", Long.toString(ceilSeconds(limiter.nanosUntilFull(0))));
+                res.header("Retry-After", Long.toString(retryAfter));
+                res.type("application/json");
+                halt(429, "{\"error\":\"rate limit exceeded\",\"retryAfterSeconds\":" + retryAfter + "}");
+            }
+        });
+
+        get("/health/live", (req, res) -> {
+            res.type("application/json");
+            Map<String, String> response = new HashMap<>();
+            response.put("status", "UP");
+            return respond(req, res, response);
+        });
+
+        get("/health/ready", (req, res) -> {
+            res.type("application/json");
+            Map<String, Object> response = new HashMap<>();
+            if (!ready) {
+                res.status(503);
+                response.put("status", "STARTING");
+            } else {
+                response.put("status", "READY");
+                response.put("port", port());
+                response.put("timeToReadyMillis", timeToReadyMillis);
+            }
+            return respond(req, res, response);
+        });
+
         get("/hello", (req, res) -> {
             res.type("application/json");
             Map<String, String> response = new HashMap<>();
             response.put("message", "Hello, LeoVegas!");
-            return new Gson().toJson(response);
+            return respond(req, res, response);
         });
 
         post("/echo", (req, res) -> {
             res.type("application/json");
-            Gson gson = new Gson();
             Map<String, Object> response = new HashMap<>();
-            String body = req.body();
+            RequestPhaseEvent read = RequestPhaseEvent.start(req.pathInfo(), "read");
+            byte[] bodyBytes = req.bodyAsBytes();
+            int bodyLength = bodyBytes == null ? 0 : bodyBytes.length;
+            read.finish(bodyLength);
+            String body = bodyBytes == null ? null : new String(bodyBytes, requestCharset(req));
             if (body == null || body.isBlank()) {
                 response.put("echo", "");
             } else {
+                RequestPhaseEvent parse = RequestPhaseEvent.start(req.pathInfo(), "parse");
                 try {
-                    com.google.gson.JsonElement parsed = gson.fromJson(body, com.google.gson.JsonElement.class);
+                    com.google.gson.JsonElement parsed = GSON.fromJson(body, com.google.gson.JsonElement.class);
                     if (parsed != null && (parsed.isJsonObject() || parsed.isJsonArray())) {
                         // Return the parsed JSON structure under "echo"
                         response.put("echo", parsed);
@@ -54,9 +219,11 @@ public class MockApiServer {
                 } catch (Exception e) {
                     // Not valid JSON - echo the raw body string
                     response.put("echo", body);
+                } finally {
+                    parse.finish(bodyLength);
                 }
             }
-            return gson.toJson(response);
+            return respond(req, res, response);
         });
 
         // Simulate a long response (2 seconds)
@@ -69,13 +236,12 @@ public class MockApiServer {
             }
             Map<String, String> response = new HashMap<>();
             response.put("message", "This was a long response...........................................................................................................................................................................................................................................................................................................................................................");
-            return new Gson().toJson(response);
+            return respond(req, res, response);
         });
 
         // Return a large JSON payload matching the manyFieldsPayload used in tests
         get("/manyFieldsPayload", (req, res) -> {
             res.type("application/json");
-            Gson gson = new Gson();
             Map<String, Object> payload = new HashMap<>();
             payload.put("id", 1001);
             payload.put("name", "Alice");
@@ -96,16 +262,332 @@ public class MockApiServer {
             payload.put("features", "A,B,C");
             payload.put("tags", "tag1,tag2");
             payload.put("notes", "test user with many fields");
-            return gson.toJson(payload);
+            return respond(req, res, payload);
         });
 
         // Small quirky endpoint used by tests
         get("/chiquito", (req, res) -> {
             res.type("application/json");
-            Gson gson = new Gson();
             Map<String, String> response = new HashMap<>();
             response.put("condemor", "Jaaaaaaaarrll! No puedor! No puedorrrr!");
-            return gson.toJson(response);
+            return respond(req, res, response);
         });
+
+        configureRecording();
+        if (recording != null) {
+            // Dump the continuous recording's ring buffer and stream it back as a .jfr file.
+            // The server binds every interface and the route is unauthenticated, so only
+            // callers on this host may fetch it.
+            post("/admin/jfr/dump", (req, res) -> {
+                if (!isLoopback(req.ip())) {
+                    res.type("application/json");
+                    res.status(403);
+                    Map<String, String> response = new HashMap<>();
+                    response.put("error", "JFR dumps are only served to loopback clients");
+                    return respond(req, res, response);
+                }
+                Path dump = Files.createTempFile("mock-api-", ".jfr");
+                try {
+                    recording.dump(dump);
+                    HttpServletResponse raw = res.raw();
+                    raw.setContentType("application/octet-stream");
+                    raw.setHeader("Content-Disposition", "attachment; filename=\"mock-api.jfr\"");
+                    raw.setContentLengthLong(Files.size(dump));
+                    Files.copy(dump, raw.getOutputStream());
+                } finally {
+                    Files.deleteIfExists(dump);
+                }
+                return "";
+            });
+        }
+
+        routedPaths = routes().stream()
+                .filter(m -> m.getTarget() instanceof RouteImpl)
+                .map(RouteMatch::getMatchUri)
+                .collect(Collectors.toUnmodifiableSet());
+
+        awaitInitialization();
+        int boundPort = port();
+        timeToReadyMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        ready = true;
+        System.out.println("Mock API ready on port " + boundPort + " in " + timeToReadyMillis + " ms");
+        return boundPort;
+    }
+
+    /**
+     * Reads rate limits from system properties. {@code mock.ratelimit} gives every
+     * route its own budget of that size, {@code mock.ratelimit.route.<path>} overrides
+     * it for one path; both take {@code capacity:refillPerSecond}. Buckets are keyed by the
+     * {@code mock.ratelimit.keyHeader} header (default {@code X-API-Key}) when
+     * present, otherwise by client IP, and are evicted after
+     * {@code mock.ratelimit.idleSeconds} (default 60) of inactivity.
+     */
+    private static void configureRateLimits() {
+        long idleSeconds = 60;
+        String idleProp = System.getProperty("mock.ratelimit.idleSeconds");
+        if (idleProp != null) {
+            try {
+                long parsed = Long.parseLong(idleProp);
+                // Zero or less would evict buckets that are still refilling, handing quota back early
+                if (parsed <= 0) throw new NumberFormatException("must be positive: " + parsed);
+                idleSeconds = parsed;
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid system property mock.ratelimit.idleSeconds, using default 60");
+            }
+        }
+        long idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        rateLimitKeyHeader = System.getProperty("mock.ratelimit.keyHeader", "X-API-Key");
+
+        String fallbackSpec = null;
+        String defaultSpec = System.getProperty("mock.ratelimit");
+        if (defaultSpec != null) {
+            try {
+                RateLimiter.fromSpec(defaultSpec, idleNanos);
+                fallbackSpec = defaultSpec;
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid system property mock.ratelimit, rate limiting disabled: " + e.getMessage());
+            }
+        }
+        Map<String, RateLimiter> perRoute = new HashMap<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (!name.startsWith(RATE_LIMIT_ROUTE_PREFIX)) continue;
+            try {
+                perRoute.put(name.substring(RATE_LIMIT_ROUTE_PREFIX.length()),
+                        RateLimiter.fromSpec(System.getProperty(name), idleNanos));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid system property " + name + ", ignoring: " + e.getMessage());
+            }
+        }
+        rateLimitIdleNanos = idleNanos;
+        defaultRateLimitSpec = fallbackSpec;
+        defaultRouteLimiters.clear();
+        routeLimiters = Map.copyOf(perRoute);
+
+        if (fallbackSpec != null || !perRoute.isEmpty()) {
+            rateLimitEvictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "rate-limit-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1, idleSeconds / 2);
+            rateLimitEvictor.scheduleWithFixedDelay(() -> {
+                long now = System.nanoTime();
+                defaultRouteLimiters.values().forEach(l -> l.evictIdle(now));
+                routeLimiters.values().forEach(l -> l.evictIdle(now));
+            }, period, period, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Serializes {@code payload} as JSON and writes it to the response directly,
+     * so both phases are timed by {@link RequestPhaseEvent}. Spark would otherwise
+     * write the body after every filter has run, out of reach of the handlers.
+     */
+    private static String respond(Request req, Response res, Object payload) throws IOException {
+        String route = req.pathInfo();
+        RequestPhaseEvent serialize = RequestPhaseEvent.start(route, "serialize");
+        byte[] bytes = GSON.toJson(payload).getBytes(StandardCharsets.UTF_8);
+        serialize.finish(bytes.length);
+
+        RequestPhaseEvent write = RequestPhaseEvent.start(route, "write");
+        HttpServletResponse raw = res.raw();
+        raw.setContentLength(bytes.length);
+        raw.getOutputStream().write(bytes);
+        // Put the body on the wire here so the write phase times the actual send
+        raw.flushBuffer();
+        write.finish(bytes.length);
+        // An empty (but set) body keeps Spark from treating the request as unmatched
+        return "";
+    }
+
+    /**
+     * Starts a continuous JFR recording when {@code mock.jfr=true}. The ring buffer
+     * is bounded by {@code mock.jfr.maxSizeMb} (default 64) and
+     * {@code mock.jfr.maxAgeMinutes} (default 15) and can be fetched with
+     * {@code POST /admin/jfr/dump}.
+     */
+    private static void configureRecording() {
+        if (!Boolean.getBoolean("mock.jfr")) return;
+        long maxSizeMb = 64;
+        long maxAgeMinutes = 15;
+        try {
+            maxSizeMb = Long.parseLong(System.getProperty("mock.jfr.maxSizeMb", "64"));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid system property mock.jfr.maxSizeMb, using default 64");
+        }
+        try {
+            maxAgeMinutes = Long.parseLong(System.getProperty("mock.jfr.maxAgeMinutes", "15"));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid system property mock.jfr.maxAgeMinutes, using default 15");
+        }
+        try {
+            recording = ContinuousRecording.start(maxSizeMb * 1024 * 1024, Duration.ofMinutes(maxAgeMinutes));
+        } catch (Exception e) {
+            System.err.println("Could not start JFR recording, profiling disabled: " + e);
+        }
+    }
+
+    /**
+     * Enables the JSON-lines access log when {@code mock.accesslog} is set to
+     * {@code stdout}, {@code stderr} or a file path (appended to). Successful
+     * requests are sampled at {@code mock.accesslog.sampleRate} (default 1.0);
+     * {@code mock.accesslog.queueSize} (default 8192) bounds the records waiting
+     * for the writer, beyond which records are dropped rather than blocking.
+     */
+    private static void configureAccessLog() {
+        String target = System.getProperty("mock.accesslog");
+        if (target == null || target.isBlank()) return;
+        double sampleRate = 1.0;
+        int queueSize = 8192;
+        try {
+            sampleRate = Double.parseDouble(System.getProperty("mock.accesslog.sampleRate", "1.0"));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid system property mock.accesslog.sampleRate, using default 1.0");
+        }
+        try {
+            queueSize = Integer.parseInt(System.getProperty("mock.accesslog.queueSize", "8192"));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid system property mock.accesslog.queueSize, using default 8192");
+        }
+        try {
+            Writer out;
+            boolean closeOnStop;
+            if ("stdout".equals(target)) {
+                out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                closeOnStop = false;
+            } else if ("stderr".equals(target)) {
+                out = new OutputStreamWriter(System.err, StandardCharsets.UTF_8);
+                closeOnStop = false;
+            } else {
+                out = new OutputStreamWriter(new FileOutputStream(target, true), StandardCharsets.UTF_8);
+                closeOnStop = true;
+            }
+            accessLog = new AccessLog(new BufferedWriter(out, 64 * 1024), closeOnStop, queueSize, sampleRate);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not open access log " + target + ", access logging disabled: " + e);
+        }
+    }
+
+    /**
+     * Same servers Spark would build, but counting in-flight requests at the Jetty
+     * level and with the access log attached when enabled.
+     */
+    private static final class InstrumentedJettyFactory implements JettyServerFactory {
+        @Override
+        public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+            if (maxThreads <= 0) return instrument(new InFlightTrackingServer(null));
+            return instrument(new InFlightTrackingServer(new QueuedThreadPool(maxThreads,
+                    minThreads > 0 ? minThreads : 8, threadTimeoutMillis > 0 ? threadTimeoutMillis : 60000)));
+        }
+
+        @Override
+        public Server create(ThreadPool threadPool) {
+            return instrument(new InFlightTrackingServer(threadPool));
+        }
+
+        private static Server instrument(Server server) {
+            AccessLog log = accessLog;
+            // Jetty calls the request log once the response is completely written, which
+            // covers bodies Spark serializes after its filters (halts, 404s, 500s) as well
+            server.setRequestLog((request, response) -> {
+                try {
+                    if (log != null) log.log(request, response);
+                } finally {
+                    // Requests Jetty rejects before dispatch were never counted
+                    if (request.getAttribute(IN_FLIGHT_ATTRIBUTE) != null) inFlight.decrementAndGet();
+                }
+            });
+            return server;
+        }
+    }
+
+    /** Counts every request Jetty dispatches; the request log callback uncounts it on completion. */
+    private static final class InFlightTrackingServer extends Server {
+        InFlightTrackingServer(ThreadPool threadPool) {
+            super(threadPool);
+        }
+
+        @Override
+        public void handle(HttpChannel channel) throws IOException, ServletException {
+            inFlight.incrementAndGet();
+            channel.getRequest().setAttribute(IN_FLIGHT_ATTRIBUTE, Boolean.TRUE);
+            super.handle(channel);
+        }
+    }
+
+    private static boolean isLoopback(String ip) {
+        try {
+            // ip is a literal address, so this never goes to DNS
+            return ip != null && InetAddress.getByName(ip).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static long ceilSeconds(long nanos) {
+        return (nanos + 999_999_999L) / 1_000_000_000L;
+    }
+
+    /** The request's declared charset, falling back to UTF-8 when absent or unsupported. */
+    private static Charset requestCharset(Request req) {
+        String encoding = req.raw().getCharacterEncoding();
+        if (encoding != null) {
+            try {
+                return Charset.forName(encoding);
+            } catch (IllegalArgumentException e) {
+                // fall through to UTF-8
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /** Requests currently being handled; shutdown waits for this to reach zero. */
+    public static int inFlightRequests() {
+        return inFlight.get();
+    }
+
+    /** Milliseconds from {@link #start(int)} until the server accepted connections, or -1 if not started. */
+    public static long timeToReadyMillis() {
+        return timeToReadyMillis;
+    }
+
+    /**
+     * Stops accepting new work, waits for in-flight requests to finish (up to the
+     * given timeout) and then stops the server, returning once it is fully down.
+     */
+    public static void shutdown(Duration drainTimeout) {
+        ready = false;
+        draining = true;
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (inFlight.get() > 0) {
+            System.err.println("Shutdown drain timed out with " + inFlight.get() + " request(s) in flight");
+        }
+        stop();
+        awaitStop();
+        if (rateLimitEvictor != null) {
+            rateLimitEvictor.shutdownNow();
+            rateLimitEvictor = null;
+        }
+        defaultRateLimitSpec = null;
+        defaultRouteLimiters.clear();
+        routeLimiters = Map.of();
+        routedPaths = Set.of();
+        if (recording != null) {
+            recording.stop();
+            recording = null;
+        }
+        if (accessLog != null) {
+            accessLog.stop();
+            accessLog = null;
+        }
+        timeToReadyMillis = -1;
     }
 }
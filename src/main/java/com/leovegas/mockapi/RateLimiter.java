@@ -0,0 +1,103 @@
+package com.leovegas.mockapi;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Token-bucket rate limiter keyed by client (IP or API key).
+ *
+ * Each bucket is a single {@code long} holding the "theoretical arrival time"
+ * of the next request (the GCRA formulation of a token bucket), updated with a
+ * CAS. Acquiring a token therefore takes no lock and allocates nothing once the
+ * client's bucket exists. Buckets live in a {@link ConcurrentHashMap}, whose
+ * reads are lock-free and whose writes are striped per bin.
+ */
+public class RateLimiter {
+    private final int capacity;
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final long idleNanos;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(int capacity, double refillPerSecond, long idleNanos) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        if (!(refillPerSecond > 0)) throw new IllegalArgumentException("refill rate must be > 0");
+        this.capacity = capacity;
+        this.emissionIntervalNanos = Math.max(1, (long) (1_000_000_000L / refillPerSecond));
+        this.burstNanos = emissionIntervalNanos * capacity;
+        this.idleNanos = idleNanos;
+    }
+
+    /**
+     * Parses a {@code capacity:refillPerSecond} spec such as {@code 100:50}.
+     *
+     * @throws IllegalArgumentException if the spec is malformed
+     */
+    public static RateLimiter fromSpec(String spec, long idleNanos) {
+        String[] parts = spec.trim().split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("expected capacity:refillPerSecond but got '" + spec + "'");
+        }
+        try {
+            return new RateLimiter(Integer.parseInt(parts[0].trim()), Double.parseDouble(parts[1].trim()), idleNanos);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("expected capacity:refillPerSecond but got '" + spec + "'", e);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Takes one token from the client's bucket.
+     *
+     * @return the number of tokens left (>= 0) when the request is allowed, or
+     *         the negated number of nanoseconds until a token is available when it is not
+     */
+    public long tryAcquire(String clientKey, long nowNanos) {
+        Bucket bucket = buckets.get(clientKey);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(clientKey, k -> new Bucket(nowNanos));
+        }
+        while (true) {
+            long tat = bucket.tat;
+            long newTat = Math.max(tat, nowNanos) + emissionIntervalNanos;
+            long allowAt = newTat - burstNanos;
+            if (nowNanos < allowAt) {
+                return -(allowAt - nowNanos);
+            }
+            if (Bucket.TAT.compareAndSet(bucket, tat, newTat)) {
+                return (nowNanos - allowAt) / emissionIntervalNanos;
+            }
+        }
+    }
+
+    /** Nanoseconds until a bucket with {@code remaining} tokens left is full again. */
+    public long nanosUntilFull(long remaining) {
+        return (capacity - remaining) * emissionIntervalNanos;
+    }
+
+    /**
+     * Drops buckets that have been full for at least the idle timeout. A full
+     * bucket is indistinguishable from a fresh one, so eviction never changes
+     * what a returning client is allowed to do.
+     */
+    public void evictIdle(long nowNanos) {
+        buckets.values().removeIf(b -> nowNanos - b.tat >= idleNanos);
+    }
+
+    public int trackedKeys() {
+        return buckets.size();
+    }
+
+    private static final class Bucket {
+        static final AtomicLongFieldUpdater<Bucket> TAT = AtomicLongFieldUpdater.newUpdater(Bucket.class, "tat");
+
+        volatile long tat;
+
+        Bucket(long nowNanos) {
+            this.tat = nowNanos;
+        }
+    }
+}
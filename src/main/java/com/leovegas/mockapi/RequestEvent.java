@@ -0,0 +1,36 @@
+package com.leovegas.mockapi;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** JFR event spanning one HTTP request, from the first filter to the last. */
+@Name("com.leovegas.mockapi.Request")
+@Label("Mock API Request")
+@Category({"LeoVegas", "Mock API"})
+@Description("One HTTP request handled by the mock API, including the wait between Jetty parsing the request line and the first filter")
+@StackTrace(false)
+final class RequestEvent extends Event {
+    @Label("Method")
+    String method;
+
+    @Label("Route")
+    String route;
+
+    @Label("Status")
+    int status;
+
+    @Label("Queue Wait")
+    @Description("Time between Jetty parsing the request line and the first filter running")
+    @Timespan(Timespan.MILLISECONDS)
+    long queueWait;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+}
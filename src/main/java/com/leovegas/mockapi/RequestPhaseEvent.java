@@ -0,0 +1,43 @@
+package com.leovegas.mockapi;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR event timing one phase (read, parse, serialize, write) of a route handler. */
+@Name("com.leovegas.mockapi.RequestPhase")
+@Label("Mock API Request Phase")
+@Category({"LeoVegas", "Mock API"})
+@Description("Time spent in one phase of handling a mock API request")
+@StackTrace(false)
+final class RequestPhaseEvent extends Event {
+    @Label("Route")
+    String route;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Payload Size")
+    @DataAmount
+    long payloadBytes;
+
+    static RequestPhaseEvent start(String route, String phase) {
+        RequestPhaseEvent event = new RequestPhaseEvent();
+        event.route = route;
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+    void finish(long payloadBytes) {
+        end();
+        if (shouldCommit()) {
+            this.payloadBytes = payloadBytes;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.leovegas.apitest;
+
+import com.leovegas.mockapi.AccessLog;
+import com.leovegas.mockapi.MockApiServer;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@org.junit.jupiter.api.extension.ExtendWith(TestLogger.class)
+public class MockApiAccessLogTest {
+    private static Path logFile;
+    private static String baseUrl;
+    private static HttpClient client;
+    private static final Gson gson = new Gson();
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        logFile = Files.createTempFile("mock-api-access-", ".log");
+        System.setProperty("mock.accesslog", logFile.toString());
+        baseUrl = "http://localhost:" + MockApiServer.start(0);
+        client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @AfterAll
+    public static void teardown() throws IOException {
+        MockApiServer.shutdown(Duration.ofSeconds(10));
+        System.clearProperty("mock.accesslog");
+        Files.deleteIfExists(logFile);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder b) throws Exception {
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    @Order(1)
+    public void testRequestsAreLoggedAsJsonLines() throws Exception {
+        HttpResponse<String> hello = send(HttpRequest.newBuilder(URI.create(baseUrl + "/hello")).GET());
+        assertEquals(200, hello.statusCode());
+        String generatedId = hello.headers().firstValue("X-Request-Id").orElse(null);
+        assertNotNull(generatedId, "server should assign a request id");
+
+        HttpResponse<String> echo = send(HttpRequest.newBuilder(URI.create(baseUrl + "/echo"))
+                .header("X-Request-Id", "client-supplied-1")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"id\":1}")));
+        assertEquals(200, echo.statusCode());
+        assertEquals("client-supplied-1", echo.headers().firstValue("X-Request-Id").orElse(null));
+
+        assertEquals(404, send(HttpRequest.newBuilder(URI.create(baseUrl + "/notfound")).GET()).statusCode());
+
+        // The writer flushes asynchronously, so wait until all three records are on disk
+        List<JsonObject> records = awaitRecords(List.of(
+                r -> generatedId.equals(r.get("id").getAsString()),
+                r -> "client-supplied-1".equals(r.get("id").getAsString()),
+                r -> "/notfound".equals(r.get("path").getAsString()) && r.get("status").getAsInt() == 404));
+
+        JsonObject helloRecord = find(records, generatedId);
+        assertEquals("GET", helloRecord.get("method").getAsString());
+        assertEquals("/hello", helloRecord.get("path").getAsString());
+        assertEquals(200, helloRecord.get("status").getAsInt());
+        assertEquals(hello.body().getBytes(StandardCharsets.UTF_8).length, helloRecord.get("bytes").getAsLong());
+        assertTrue(helloRecord.get("latencyMs").getAsLong() >= 0);
+        assertTrue(helloRecord.has("ts"));
+
+        JsonObject echoRecord = find(records, "client-supplied-1");
+        assertEquals("POST", echoRecord.get("method").getAsString());
+        assertEquals("/echo", echoRecord.get("path").getAsString());
+
+        assertTrue(records.stream().anyMatch(r -> "/notfound".equals(r.get("path").getAsString())
+                && r.get("status").getAsInt() == 404), "404s should be logged");
+    }
+
+    private static List<JsonObject> awaitRecords(List<Predicate<JsonObject>> expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            List<JsonObject> records = Files.readAllLines(logFile, StandardCharsets.UTF_8).stream()
+                    .filter(line -> !line.isBlank())
+                    .map(line -> gson.fromJson(line, JsonObject.class))
+                    .filter(r -> r.has("id"))
+                    .collect(Collectors.toList());
+            if (expected.stream().allMatch(p -> records.stream().anyMatch(p))) {
+                return records;
+            }
+            if (System.nanoTime() > deadline) {
+                fail("access log did not contain the expected records within 10 s: " + records);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static JsonObject find(List<JsonObject> records, String id) {
+        return records.stream()
+                .filter(r -> id.equals(r.get("id").getAsString()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no access log record with id " + id + " in " + records));
+    }
+
+    @Test
+    @Order(2)
+    public void testSamplingKeepsErrors() {
+        StringWriter out = new StringWriter();
+        AccessLog log = new AccessLog(out, false, 64, 0.0);
+        long now = System.currentTimeMillis();
+        assertFalse(log.record(now, "a", "GET", "/hello", 200, 10, 1));
+        assertTrue(log.record(now, "b", "GET", "/missing", 404, 10, 1));
+        assertTrue(log.record(now, "c", "POST", "/echo", 500, 10, 1));
+        log.stop();
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length, out.toString());
+        assertEquals("b", gson.fromJson(lines[0], JsonObject.class).get("id").getAsString());
+        assertEquals("c", gson.fromJson(lines[1], JsonObject.class).get("id").getAsString());
+    }
+
+    @Test
+    @Order(3)
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testFullQueueDropsInsteadOfBlocking() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StringWriter sink = new StringWriter();
+        // A writer that stalls on first use simulates slow log I/O
+        Writer stalled = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sink.write(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        AccessLog log = new AccessLog(stalled, false, 4, 1.0);
+        long now = System.currentTimeMillis();
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            log.record(now, "id-" + i, "GET", "/hello", 200, 10, 1);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(elapsedMs < 1000, "recording must not block on a stalled writer, took " + elapsedMs + " ms");
+        assertTrue(log.dropped() >= 1000 - 8, "expected most records to be dropped, dropped " + log.dropped());
+
+        release.countDown();
+        log.stop();
+        assertTrue(sink.toString().contains("\"type\":\"dropped\""), "drops should be reported in the log");
+    }
+}
@@ -0,0 +1,286 @@
+package com.leovegas.apitest;
+
+import com.leovegas.mockapi.MockApiServer;
+import org.junit.jupiter.api.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Correctness-under-load checks for the mock server. Every request carries a
+ * distinct payload so cross-talk or truncation between concurrent exchanges
+ * shows up as a mismatch rather than passing silently.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@org.junit.jupiter.api.extension.ExtendWith(TestLogger.class)
+public class MockApiConcurrencyTest {
+    private static final int ECHO_REQUESTS = 3000;
+    private static final int ROUTE_REQUESTS = 1500;
+    private static final int MAX_IN_FLIGHT = 64;
+    // Slack allowed over the pre-burst baseline once the server has settled
+    private static final int JETTY_THREAD_SLACK = 4;
+    // Spark leaves Jetty's QueuedThreadPool at its default size
+    private static final int JETTY_MAX_THREADS = 200;
+    private static final long HEAP_SLACK_BYTES = 64L * 1024 * 1024;
+
+    private static String baseUrl;
+    private static HttpClient client;
+    private static ExecutorService clientExecutor;
+    private static final Gson gson = new Gson();
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        baseUrl = "http://localhost:" + MockApiServer.start(0);
+
+        // Dedicated executor so client-side threads are bounded and can be torn down
+        clientExecutor = Executors.newFixedThreadPool(8);
+        client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @AfterAll
+    public static void teardown() {
+        clientExecutor.shutdownNow();
+        MockApiServer.shutdown(Duration.ofSeconds(10));
+    }
+
+    private HttpRequest echoRequest(String body) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/echo"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest getRequest(String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    /**
+     * Sends every request asynchronously with at most {@link #MAX_IN_FLIGHT}
+     * outstanding, and collects a description of each mismatch or failure.
+     */
+    private List<String> runBurst(List<HttpRequest> requests, List<Checker> checkers) throws Exception {
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            final int idx = i;
+            inFlight.acquire();
+            futures.add(client.sendAsync(requests.get(i), HttpResponse.BodyHandlers.ofString())
+                    .handle((resp, err) -> {
+                        try {
+                            if (err != null) {
+                                failures.add("#" + idx + " failed: " + err);
+                            } else {
+                                String problem = checkers.get(idx).check(resp);
+                                if (problem != null) failures.add("#" + idx + " " + problem);
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(90, TimeUnit.SECONDS);
+        return new ArrayList<>(failures);
+    }
+
+    @FunctionalInterface
+    private interface Checker {
+        /** Returns null when the response is correct, otherwise a short description of the problem. */
+        String check(HttpResponse<String> resp);
+    }
+
+    /**
+     * Pool threads Jetty 9.4 keeps besides one worker per in-flight request, sized from
+     * the CPU count the way {@code ServerConnector}, {@code SelectorManager} and
+     * {@code ReservedThreadExecutor} do.
+     */
+    private static int jettyFixedThreads() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int acceptors = Math.max(1, Math.min(4, cores / 8));
+        int selectors = Math.max(1, Math.min(cores / 2, JETTY_MAX_THREADS / 16));
+        int reserved = Math.max(1, Math.min(cores, JETTY_MAX_THREADS / 10));
+        return acceptors + selectors + reserved + JETTY_THREAD_SLACK;
+    }
+
+    /** Live threads of the server's Jetty {@code QueuedThreadPool}, which names them {@code qtp<id>-<n>}. */
+    private static int jettyThreadCount() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.isAlive() && t.getName().startsWith("qtp")) count++;
+        }
+        return count;
+    }
+
+    private static String failureSummary(List<String> failures) {
+        return failures.size() + " mismatched responses, first: " + failures.subList(0, Math.min(5, failures.size()));
+    }
+
+    @Test
+    @Order(1)
+    @Timeout(value = 120, unit = TimeUnit.SECONDS)
+    public void testConcurrentEchoPayloadsAreIsolated() throws Exception {
+        Random random = new Random(42);
+        List<HttpRequest> requests = new ArrayList<>(ECHO_REQUESTS);
+        List<Checker> checkers = new ArrayList<>(ECHO_REQUESTS);
+        for (int i = 0; i < ECHO_REQUESTS; i++) {
+            // Vary the size so truncation at any buffer boundary is visible
+            int size = 1 + random.nextInt(16_384);
+            StringBuilder data = new StringBuilder(size);
+            for (int c = 0; c < size; c++) {
+                data.append((char) ('a' + random.nextInt(26)));
+            }
+            JsonObject payload = new JsonObject();
+            payload.addProperty("seq", i);
+            payload.addProperty("token", UUID.randomUUID().toString());
+            payload.addProperty("data", data.toString());
+            payload.addProperty("length", size);
+            String body = gson.toJson(payload);
+            JsonElement expected = gson.fromJson(body, JsonElement.class);
+
+            requests.add(echoRequest(body));
+            checkers.add(resp -> {
+                if (resp.statusCode() != 200) return "status " + resp.statusCode();
+                JsonObject obj;
+                try {
+                    obj = gson.fromJson(resp.body(), JsonObject.class);
+                } catch (Exception e) {
+                    return "unparseable body of " + resp.body().length() + " chars";
+                }
+                if (obj == null || !obj.has("echo")) return "missing echo field";
+                JsonElement echoed = obj.get("echo");
+                return expected.equals(echoed) ? null : "echo did not match its request";
+            });
+        }
+
+        List<String> failures = runBurst(requests, checkers);
+        assertTrue(failures.isEmpty(), () -> failureSummary(failures));
+    }
+
+    @Test
+    @Order(2)
+    @Timeout(value = 120, unit = TimeUnit.SECONDS)
+    public void testConcurrentMixedRoutes() throws Exception {
+        Map<String, JsonObject> expectedByPath = Map.of(
+                "/hello", gson.fromJson("{\"message\":\"Hello, LeoVegas!\"}", JsonObject.class),
+                "/chiquito", gson.fromJson("{\"condemor\":\"Jaaaaaaaarrll! No puedor! No puedorrrr!\"}", JsonObject.class),
+                "/manyFieldsPayload", gson.fromJson(client.send(getRequest("/manyFieldsPayload"),
+                        HttpResponse.BodyHandlers.ofString()).body(), JsonObject.class));
+        List<String> paths = new ArrayList<>(expectedByPath.keySet());
+
+        List<HttpRequest> requests = new ArrayList<>(ROUTE_REQUESTS);
+        List<Checker> checkers = new ArrayList<>(ROUTE_REQUESTS);
+        for (int i = 0; i < ROUTE_REQUESTS; i++) {
+            if (i % 4 == 3) {
+                // Interleave echo traffic so GET and POST handlers run side by side
+                String body = "{\"seq\":" + i + ",\"route\":\"mixed\"}";
+                JsonElement expected = gson.fromJson(body, JsonElement.class);
+                requests.add(echoRequest(body));
+                checkers.add(resp -> {
+                    if (resp.statusCode() != 200) return "status " + resp.statusCode();
+                    JsonObject obj = gson.fromJson(resp.body(), JsonObject.class);
+                    return expected.equals(obj.get("echo")) ? null : "echo did not match its request";
+                });
+            } else {
+                String path = paths.get(i % paths.size());
+                JsonObject expected = expectedByPath.get(path);
+                requests.add(getRequest(path));
+                checkers.add(resp -> {
+                    if (resp.statusCode() != 200) return path + " status " + resp.statusCode();
+                    JsonObject obj = gson.fromJson(resp.body(), JsonObject.class);
+                    return expected.equals(obj) ? null : path + " body changed under load";
+                });
+            }
+        }
+
+        List<String> failures = runBurst(requests, checkers);
+        assertTrue(failures.isEmpty(), () -> failureSummary(failures));
+    }
+
+    @Test
+    @Order(3)
+    @Timeout(value = 120, unit = TimeUnit.SECONDS)
+    public void testResourcesSettleAfterBurst() throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        // Warm up with a burst of the same shape so the Jetty pool has already grown to
+        // its working size; any further growth during the measured burst is a leak
+        String filler = "x".repeat(4096);
+        List<HttpRequest> warmup = new ArrayList<>();
+        List<Checker> okOnly = new ArrayList<>();
+        for (int i = 0; i < ECHO_REQUESTS / 2; i++) {
+            warmup.add(echoRequest("{\"warmup\":" + i + ",\"filler\":\"" + filler + "\"}"));
+            okOnly.add(resp -> resp.statusCode() == 200 ? null : "status " + resp.statusCode());
+        }
+        assertTrue(runBurst(warmup, okOnly).isEmpty());
+
+        System.gc();
+        int baselineThreads = jettyThreadCount();
+        // The server runs in this JVM, so heap is measured JVM-wide
+        long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+
+        List<HttpRequest> burst = new ArrayList<>();
+        List<Checker> burstCheckers = new ArrayList<>();
+        for (int i = 0; i < ECHO_REQUESTS; i++) {
+            burst.add(echoRequest("{\"seq\":" + i + ",\"filler\":\"" + filler + "\"}"));
+            burstCheckers.add(resp -> resp.statusCode() == 200 ? null : "status " + resp.statusCode());
+        }
+        List<String> failures = runBurst(burst, burstCheckers);
+        assertTrue(failures.isEmpty(), () -> failureSummary(failures));
+
+        // Poll rather than sleep a fixed amount: pass as soon as both metrics settle
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        int threadCount;
+        long heapUsed;
+        do {
+            System.gc();
+            threadCount = jettyThreadCount();
+            heapUsed = memory.getHeapMemoryUsage().getUsed();
+            if (threadCount <= baselineThreads + JETTY_THREAD_SLACK && heapUsed <= baselineHeap + HEAP_SLACK_BYTES) {
+                break;
+            }
+            Thread.sleep(250);
+        } while (System.nanoTime() < deadline);
+
+        System.out.println("Jetty threads before/after burst: " + baselineThreads + "/" + threadCount
+                + ", heap before/after burst: " + baselineHeap / 1024 + "/" + heapUsed / 1024 + " KiB");
+        assertTrue(baselineThreads > 0, "no Jetty pool threads found; thread naming may have changed");
+        assertTrue(threadCount <= baselineThreads + JETTY_THREAD_SLACK,
+                "Jetty thread count did not settle: " + baselineThreads + " -> " + threadCount);
+        assertTrue(threadCount <= MAX_IN_FLIGHT + jettyFixedThreads(),
+                "Jetty pool grew beyond the client's concurrency: " + threadCount + " threads");
+        assertTrue(heapUsed <= baselineHeap + HEAP_SLACK_BYTES,
+                "heap did not settle: " + baselineHeap + " -> " + heapUsed + " bytes");
+    }
+}
@@ -4,9 +4,7 @@ import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import org.junit.jupiter.api.*;
 import com.leovegas.mockapi.MockApiServer;
-import static spark.Spark.awaitInitialization;
-import static spark.Spark.stop;
-import java.net.ServerSocket;
+import java.time.Duration;
 
 import static io.restassured.RestAssured.*;
 import static org.hamcrest.Matchers.*;
@@ -17,24 +15,14 @@ public class MockApiJunitRestAssuredTest {
 
     @BeforeAll
     public static void setup() throws Exception {
-        int port;
-        try (ServerSocket socket = new ServerSocket(0)) {
-            port = socket.getLocalPort();
-        }
+        // Bind an ephemeral port and use the one the server reports back
         RestAssured.baseURI = "http://localhost";
-        RestAssured.port = port;
-        MockApiServer.main(new String[]{String.valueOf(port)});
-        awaitInitialization();
+        RestAssured.port = MockApiServer.start(0);
     }
 
     @AfterAll
     public static void teardown() {
-        try {
-            stop();
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        MockApiServer.shutdown(Duration.ofSeconds(10));
     }
 
     @Test
@@ -345,4 +333,30 @@ public class MockApiJunitRestAssuredTest {
             .body("echo.data", equalTo(largeData));
     }
 
+    @Test
+    @Order(11)
+    public void testHealthEndpoints_jUnit() {
+        given()
+        .when()
+            .get("/health/live")
+        .then()
+            .statusCode(200)
+            .contentType(ContentType.JSON)
+            .body("status", equalTo("UP"));
+
+        given()
+        .when()
+            .get("/health/ready")
+        .then()
+            .statusCode(200)
+            .contentType(ContentType.JSON)
+            .body("status", equalTo("READY"))
+            .body("port", equalTo(RestAssured.port))
+            .body("timeToReadyMillis", greaterThanOrEqualTo(0));
+        long maxTimeToReady = Long.getLong("mock.maxTimeToReadyMillis", 3000);
+        System.out.println("Mock API time-to-ready: " + MockApiServer.timeToReadyMillis() + " ms");
+        Assertions.assertTrue(MockApiServer.timeToReadyMillis() <= maxTimeToReady,
+            "startup took " + MockApiServer.timeToReadyMillis() + " ms, limit " + maxTimeToReady + " ms");
+    }
+
 }
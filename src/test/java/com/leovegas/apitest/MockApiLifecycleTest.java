@@ -0,0 +1,106 @@
+package com.leovegas.apitest;
+
+import com.leovegas.mockapi.MockApiServer;
+import org.junit.jupiter.api.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@org.junit.jupiter.api.extension.ExtendWith(TestLogger.class)
+public class MockApiLifecycleTest {
+    // Upper bound for startup; override with -Dmock.maxTimeToReadyMillis on slow runners
+    private static final long MAX_TIME_TO_READY_MS = Long.getLong("mock.maxTimeToReadyMillis", 3000);
+
+    private static HttpResponse<String> get(HttpClient client, String url) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder().uri(URI.create(url)).GET().build();
+        return client.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    @Order(1)
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testShutdownDrainsInFlightRequests() throws Exception {
+        String baseUrl = "http://localhost:" + MockApiServer.start(0);
+        assertTrue(MockApiServer.timeToReadyMillis() <= MAX_TIME_TO_READY_MS,
+                "startup took " + MockApiServer.timeToReadyMillis() + " ms, limit " + MAX_TIME_TO_READY_MS + " ms");
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        boolean stopped = false;
+        try {
+            // /long sleeps five seconds inside its handler
+            long longSentNanos = System.nanoTime();
+            CompletableFuture<HttpResponse<String>> longResp = client.sendAsync(
+                    HttpRequest.newBuilder().uri(URI.create(baseUrl + "/long")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (MockApiServer.inFlightRequests() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(MockApiServer.inFlightRequests() > 0, "/long never reached the server");
+
+            CompletableFuture<Long> shutdownReturnedNanos = CompletableFuture.supplyAsync(() -> {
+                MockApiServer.shutdown(Duration.ofSeconds(30));
+                return System.nanoTime();
+            });
+
+            // New work is refused while the drain is under way
+            HttpResponse<String> hello = get(client, baseUrl + "/hello");
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+            while (hello.statusCode() == 200 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+                hello = get(client, baseUrl + "/hello");
+            }
+            assertEquals(503, hello.statusCode());
+            assertTrue(hello.body().contains("DRAINING"), hello.body());
+            assertFalse(shutdownReturnedNanos.isDone(), "shutdown returned while /long was still in flight");
+
+            HttpResponse<String> longResult = longResp.get(30, TimeUnit.SECONDS);
+            assertEquals(200, longResult.statusCode());
+            assertTrue(longResult.body().contains("This was a long response"));
+
+            long returned = shutdownReturnedNanos.get(30, TimeUnit.SECONDS);
+            stopped = true;
+            long shutdownAfterSendMs = TimeUnit.NANOSECONDS.toMillis(returned - longSentNanos);
+            System.out.println("Shutdown returned " + shutdownAfterSendMs + " ms after /long was sent");
+            assertTrue(shutdownAfterSendMs >= 5000,
+                    "shutdown returned before the 5 s /long handler could have finished: " + shutdownAfterSendMs + " ms");
+        } finally {
+            if (!stopped) MockApiServer.shutdown(Duration.ofSeconds(10));
+        }
+    }
+
+    @Test
+    @Order(2)
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    public void testInFlightCountBalancesForBodiesSparkWrites() throws Exception {
+        String baseUrl = "http://localhost:" + MockApiServer.start(0);
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        try {
+            // 404s are written by Spark after its filters; they must be counted and uncounted like routed requests
+            for (int i = 0; i < 10; i++) {
+                assertEquals(404, get(client, baseUrl + "/notfound-" + i).statusCode());
+                assertEquals(200, get(client, baseUrl + "/hello").statusCode());
+            }
+            // Jetty completes the exchange just after the client has the response
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (MockApiServer.inFlightRequests() != 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, MockApiServer.inFlightRequests());
+        } finally {
+            MockApiServer.shutdown(Duration.ofSeconds(10));
+        }
+    }
+}
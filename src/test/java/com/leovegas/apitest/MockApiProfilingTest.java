@@ -0,0 +1,105 @@
+package com.leovegas.apitest;
+
+import com.leovegas.mockapi.MockApiServer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@org.junit.jupiter.api.extension.ExtendWith(TestLogger.class)
+public class MockApiProfilingTest {
+    private static String baseUrl;
+    private static HttpClient client;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        System.setProperty("mock.jfr", "true");
+        baseUrl = "http://localhost:" + MockApiServer.start(0);
+        client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @AfterAll
+    public static void teardown() {
+        MockApiServer.shutdown(Duration.ofSeconds(10));
+        System.clearProperty("mock.jfr");
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    @Order(1)
+    public void testDumpContainsRequestPhaseEvents() throws Exception {
+        // Non-ASCII (an escape, so the source stays ASCII) so a char count and a byte count would disagree
+        String payload = "{\"id\":1001,\"city\":\"Malm\u00f6\",\"device\":\"Android\"}";
+        long payloadBytes = payload.getBytes(StandardCharsets.UTF_8).length;
+        for (int i = 0; i < 20; i++) {
+            HttpResponse<String> resp = post("/echo", payload);
+            assertEquals(200, resp.statusCode());
+            assertTrue(resp.body().contains("\"device\":\"Android\""));
+        }
+
+        HttpRequest dumpReq = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/admin/jfr/dump"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        Path dump = Files.createTempFile("mock-api-test-", ".jfr");
+        try {
+            HttpResponse<Path> dumpResp = client.send(dumpReq, HttpResponse.BodyHandlers.ofFile(dump));
+            assertEquals(200, dumpResp.statusCode());
+            assertTrue(Files.size(dump) > 0, "JFR dump should not be empty");
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            Set<String> echoPhases = new HashSet<>();
+            boolean sawRequest = false;
+            for (RecordedEvent e : events) {
+                String type = e.getEventType().getName();
+                // The dump leaves the process, so it must not carry the environment or system properties
+                assertNotEquals("jdk.InitialEnvironmentVariable", type);
+                assertNotEquals("jdk.InitialSystemProperty", type);
+                if ("com.leovegas.mockapi.RequestPhase".equals(type) && "/echo".equals(e.getString("route"))) {
+                    String phase = e.getString("phase");
+                    echoPhases.add(phase);
+                    if ("read".equals(phase) || "parse".equals(phase)) {
+                        assertEquals(payloadBytes, e.getLong("payloadBytes"), "phase " + phase + " payload size");
+                    } else {
+                        assertTrue(e.getLong("payloadBytes") > 0, "phase " + phase + " has no payload size");
+                    }
+                } else if ("com.leovegas.mockapi.Request".equals(type) && "/echo".equals(e.getString("route"))) {
+                    sawRequest = true;
+                    assertEquals(200, e.getInt("status"));
+                    assertEquals("POST", e.getString("method"));
+                }
+            }
+            assertTrue(sawRequest, "expected a com.leovegas.mockapi.Request event for /echo");
+            assertEquals(Set.of("read", "parse", "serialize", "write"), echoPhases,
+                    "phases recorded: " + events.stream().map(ev -> ev.getEventType().getName())
+                            .distinct().collect(Collectors.joining(", ")));
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.leovegas.apitest;
+
+import com.leovegas.mockapi.MockApiServer;
+import com.leovegas.mockapi.RateLimiter;
+import org.junit.jupiter.api.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@org.junit.jupiter.api.extension.ExtendWith(TestLogger.class)
+public class MockApiRateLimitTest {
+    private static final int ECHO_CAPACITY = 5;
+    private static final int DEFAULT_CAPACITY = 3;
+    private static String baseUrl;
+    private static HttpClient client;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        // Override on /echo, small per-route default elsewhere; refill slow enough not to interfere
+        System.setProperty("mock.ratelimit.route./echo", ECHO_CAPACITY + ":0.1");
+        System.setProperty("mock.ratelimit", DEFAULT_CAPACITY + ":0.1");
+        baseUrl = "http://localhost:" + MockApiServer.start(0);
+        client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @AfterAll
+    public static void teardown() {
+        MockApiServer.shutdown(Duration.ofSeconds(10));
+        System.clearProperty("mock.ratelimit.route./echo");
+        System.clearProperty("mock.ratelimit");
+    }
+
+    private HttpResponse<String> postEcho(String apiKey) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/echo"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"id\":1}"));
+        if (apiKey != null) b.header("X-API-Key", apiKey);
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return get(path, null);
+    }
+
+    private HttpResponse<String> get(String path, String apiKey) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .GET();
+        if (apiKey != null) b.header("X-API-Key", apiKey);
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    @Order(1)
+    public void testBurstThenTooManyRequests() throws Exception {
+        for (int i = 0; i < ECHO_CAPACITY; i++) {
+            HttpResponse<String> resp = postEcho("key-a");
+            assertEquals(200, resp.statusCode());
+            assertEquals(String.valueOf(ECHO_CAPACITY), resp.headers().firstValue("X-RateLimit-Limit").orElse(null));
+            assertEquals(String.valueOf(ECHO_CAPACITY - 1 - i),
+                    resp.headers().firstValue("X-RateLimit-Remaining").orElse(null));
+            assertTrue(resp.headers().firstValue("X-RateLimit-Reset").isPresent());
+        }
+
+        HttpResponse<String> limited = postEcho("key-a");
+        assertEquals(429, limited.statusCode());
+        assertEquals("0", limited.headers().firstValue("X-RateLimit-Remaining").orElse(null));
+        long retryAfter = Long.parseLong(limited.headers().firstValue("Retry-After").orElse("0"));
+        assertTrue(retryAfter >= 1, "Retry-After should be at least one second");
+        assertTrue(limited.body().contains("rate limit exceeded"));
+    }
+
+    @Test
+    @Order(2)
+    public void testClientKeysAndRoutesAreIndependent() throws Exception {
+        // key-a is exhausted on /echo, but another API key and another route are not
+        assertEquals(200, postEcho("key-b").statusCode());
+        HttpResponse<String> hello = get("/hello");
+        assertEquals(200, hello.statusCode());
+        assertEquals(String.valueOf(DEFAULT_CAPACITY), hello.headers().firstValue("X-RateLimit-Limit").orElse(null));
+
+        // Health endpoints are never limited
+        HttpResponse<String> ready = get("/health/ready");
+        assertEquals(200, ready.statusCode());
+        assertFalse(ready.headers().firstValue("X-RateLimit-Limit").isPresent());
+    }
+
+    @Test
+    @Order(3)
+    public void testDefaultLimitIsPerRoute() throws Exception {
+        for (int i = 0; i < DEFAULT_CAPACITY; i++) {
+            assertEquals(200, get("/hello", "key-c").statusCode());
+        }
+        assertEquals(429, get("/hello", "key-c").statusCode());
+
+        // The default spec gives /chiquito a separate budget, untouched by /hello traffic
+        HttpResponse<String> chiquito = get("/chiquito", "key-c");
+        assertEquals(200, chiquito.statusCode());
+        assertEquals(String.valueOf(DEFAULT_CAPACITY - 1),
+                chiquito.headers().firstValue("X-RateLimit-Remaining").orElse(null));
+    }
+
+    @Test
+    @Order(4)
+    public void testUnroutedPathsDoNotConsumeQuota() throws Exception {
+        for (int i = 0; i < DEFAULT_CAPACITY * 3; i++) {
+            HttpResponse<String> probe = get("/notfound-" + i, "key-d");
+            assertEquals(404, probe.statusCode());
+            assertFalse(probe.headers().firstValue("X-RateLimit-Limit").isPresent());
+        }
+        HttpResponse<String> hello = get("/hello", "key-d");
+        assertEquals(200, hello.statusCode());
+        assertEquals(String.valueOf(DEFAULT_CAPACITY - 1),
+                hello.headers().firstValue("X-RateLimit-Remaining").orElse(null));
+    }
+
+    @Test
+    @Order(5)
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testLimiterThroughputWithManyKeys() throws Exception {
+        int keys = 100_000;
+        int threads = 8;
+        int perThread = 250_000;
+        long idleNanos = TimeUnit.SECONDS.toNanos(1);
+        String[] clientKeys = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            clientKeys[i] = "10.0." + (i >> 8) + "." + (i & 0xff);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        RateLimiter limiter = null;
+        try {
+            // Same total work on one thread and on all threads, each run on a fresh limiter over
+            // the same keys; best of three smooths out JIT warm-up and scheduler noise
+            double single = 0;
+            double concurrent = 0;
+            for (int run = 0; run < 3; run++) {
+                single = Math.max(single, decisionsPerSecond(pool, new RateLimiter(10, 5, idleNanos),
+                        clientKeys, 1, threads * perThread));
+                limiter = new RateLimiter(10, 5, idleNanos);
+                concurrent = Math.max(concurrent, decisionsPerSecond(pool, limiter, clientKeys, threads, perThread));
+            }
+            int cores = Runtime.getRuntime().availableProcessors();
+            System.out.printf("Rate limiter: %.0f decisions/s on 1 thread, %.0f on %d threads (%d cores), %d keys%n",
+                    single, concurrent, threads, cores, keys);
+            // Without contention throughput grows with the cores available, while a global lock
+            // stays at or below the single-thread rate. One core cannot show scaling, so there
+            // the check only guards against throughput collapsing under contention.
+            double expected = cores > 1 ? single * 0.6 * Math.min(threads, cores) : single * 0.25;
+            assertTrue(concurrent >= expected, String.format(
+                    "limiter does not scale: %.0f/s on %d threads vs %.0f/s on 1 (expected >= %.0f/s)",
+                    concurrent, threads, single, expected));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(keys, limiter.trackedKeys());
+        // Once every bucket has been full for the idle timeout, all of them are evicted
+        limiter.evictIdle(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+        assertEquals(0, limiter.trackedKeys());
+    }
+
+    private static double decisionsPerSecond(ExecutorService pool, RateLimiter limiter, String[] clientKeys,
+                                             int threads, int perThread) throws Exception {
+        int keys = clientKeys.length;
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * 7919;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    limiter.tryAcquire(clientKeys[(offset + i * 31) % keys], System.nanoTime());
+                }
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return threads * (double) perThread / seconds;
+    }
+}
@@ -3,7 +3,6 @@ package com.leovegas.apitest;
 import com.leovegas.mockapi.MockApiServer;
 import org.junit.jupiter.api.*;
 
-import java.net.ServerSocket;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -13,8 +12,6 @@ import java.time.Duration;
 import static org.junit.jupiter.api.Assertions.*;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import static spark.Spark.awaitInitialization;
-import static spark.Spark.stop;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 @org.junit.jupiter.api.extension.ExtendWith(TestLogger.class)
@@ -24,14 +21,9 @@ public class PlaywrightMockApiTest {
 
     @BeforeAll
     public static void setup() throws Exception {
-        int port;
-        try (ServerSocket socket = new ServerSocket(0)) {
-            port = socket.getLocalPort();
-        }
+        // Start the embedded Mock API server on an ephemeral port
+        int port = MockApiServer.start(0);
         baseUrl = "http://localhost:" + port;
-        // Start the embedded Mock API server on chosen port
-        MockApiServer.main(new String[]{String.valueOf(port)});
-        awaitInitialization();
 
         client = HttpClient.newBuilder()
                 .connectTimeout(Duration.ofSeconds(10))
@@ -40,12 +32,7 @@ public class PlaywrightMockApiTest {
 
     @AfterAll
     public static void teardown() {
-        try {
-            stop();
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        MockApiServer.shutdown(Duration.ofSeconds(10));
     }
 
     private HttpResponse<String> get(String path) throws Exception {
@@ -238,4 +225,24 @@ public class PlaywrightMockApiTest {
         assertTrue(obj.has("condemor"));
         assertEquals("Jaaaaaaaarrll! No puedor! No puedorrrr!", obj.get("condemor").getAsString());
     }
+
+    @Test
+    @Order(8)
+    public void testHealthEndpoints() throws Exception {
+        HttpResponse<String> live = get("/health/live");
+        assertEquals(200, live.statusCode());
+        Gson g = new Gson();
+        assertEquals("UP", g.fromJson(live.body(), JsonObject.class).get("status").getAsString());
+
+        HttpResponse<String> ready = get("/health/ready");
+        assertEquals(200, ready.statusCode());
+        JsonObject obj = g.fromJson(ready.body(), JsonObject.class);
+        assertEquals("READY", obj.get("status").getAsString());
+        assertEquals(URI.create(baseUrl).getPort(), obj.get("port").getAsInt());
+        long timeToReady = obj.get("timeToReadyMillis").getAsLong();
+        long maxTimeToReady = Long.getLong("mock.maxTimeToReadyMillis", 3000);
+        System.out.println("Mock API time-to-ready: " + timeToReady + " ms");
+        assertTrue(timeToReady >= 0 && timeToReady <= maxTimeToReady,
+                "startup took " + timeToReady + " ms, limit " + maxTimeToReady + " ms");
+    }
 }